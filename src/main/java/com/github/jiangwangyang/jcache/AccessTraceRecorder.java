@@ -0,0 +1,169 @@
+package com.github.jiangwangyang.jcache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class AccessTraceRecorder implements AutoCloseable {
+
+    static final int RECORD_BYTES = 5;
+    static final long CLOSED_BIT = 1L << 62;
+    private static final int DRAIN_LIMIT = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final long[] events;
+    private final AtomicLongArray publishedSequences;
+    private final int mask;
+    private final AtomicLong producerSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+    private final DataOutputStream out;
+    private final Thread writerThread;
+    private final LongAdder recordedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private volatile long closedSequence = Long.MAX_VALUE;
+    private volatile IOException writeException;
+
+    public AccessTraceRecorder(Path path, int bufferCapacity) throws IOException {
+        if (bufferCapacity <= 0 || bufferCapacity > 1 << 30) {
+            throw new IllegalArgumentException("bufferCapacity must be between 1 and 2^30");
+        }
+        int capacity = Integer.highestOneBit(bufferCapacity);
+        if (capacity < bufferCapacity) {
+            capacity <<= 1;
+        }
+        this.events = new long[capacity];
+        this.publishedSequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.writerThread = new Thread(this::writeLoop, "jcache-trace-recorder");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    static long encode(Operation operation, int keyHash) {
+        return ((long) operation.ordinal() << 32) | (keyHash & 0xffffffffL);
+    }
+
+    static Operation operation(long event) {
+        return Operation.VALUES[(int) (event >>> 32)];
+    }
+
+    static int keyHash(long event) {
+        return (int) event;
+    }
+
+    public void record(Operation operation, Object key) {
+        assert operation != null;
+        assert key != null;
+        long sequence;
+        do {
+            sequence = producerSequence.get();
+            if ((sequence & CLOSED_BIT) != 0 || sequence - consumerSequence.get() >= events.length) {
+                droppedCount.increment();
+                return;
+            }
+        } while (!producerSequence.compareAndSet(sequence, sequence + 1));
+        int index = (int) (sequence & mask);
+        events[index] = encode(operation, key.hashCode());
+        publishedSequences.lazySet(index, sequence + 1);
+    }
+
+    public long recordedCount() {
+        return recordedCount.sum();
+    }
+
+    public long droppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void writeLoop() {
+        for (; ; ) {
+            if (drain() > 0) {
+                continue;
+            }
+            long closed = closedSequence;
+            if (closed == Long.MAX_VALUE) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else if (consumerSequence.get() < closed) {
+                Thread.onSpinWait();
+            } else {
+                break;
+            }
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (writeException == null) {
+                writeException = e;
+            }
+        }
+    }
+
+    private int drain() {
+        long sequence = consumerSequence.get();
+        int count = 0;
+        for (; count < DRAIN_LIMIT; count++, sequence++) {
+            int index = (int) (sequence & mask);
+            if (publishedSequences.get(index) != sequence + 1) {
+                break;
+            }
+            write(events[index]);
+            consumerSequence.lazySet(sequence + 1);
+        }
+        return count;
+    }
+
+    private void write(long event) {
+        if (writeException != null) {
+            droppedCount.increment();
+            return;
+        }
+        try {
+            out.writeByte((int) (event >>> 32));
+            out.writeInt((int) event);
+            recordedCount.increment();
+        } catch (IOException e) {
+            writeException = e;
+            droppedCount.increment();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long sequence = producerSequence.getAndUpdate(s -> s | CLOSED_BIT);
+        if ((sequence & CLOSED_BIT) == 0) {
+            closedSequence = sequence;
+            LockSupport.unpark(writerThread);
+        }
+        boolean interrupted = false;
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (writeException != null) {
+            throw writeException;
+        }
+    }
+
+    public enum Operation {
+        GET,
+        GET_IF_PRESENT,
+        PUT,
+        REMOVE;
+
+        static final Operation[] VALUES = values();
+    }
+
+}
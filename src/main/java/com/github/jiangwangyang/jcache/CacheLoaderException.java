@@ -0,0 +1,13 @@
+package com.github.jiangwangyang.jcache;
+
+/**
+ * Thrown by {@link SegmentedLRUCache#get} when loading failed and failure caching is enabled.
+ * Every caller, including the thread that ran the loader, gets a new instance whose cause is
+ * the exception thrown by the loader.
+ */
+public class CacheLoaderException extends RuntimeException {
+
+    public CacheLoaderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
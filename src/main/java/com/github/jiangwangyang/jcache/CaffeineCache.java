@@ -5,6 +5,8 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
 
 import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 
@@ -14,8 +16,13 @@ public class CaffeineCache<K, V> implements JCache<K, V> {
     final long startMillis;
 
     public CaffeineCache(int capacity) {
+        this(capacity, ForkJoinPool.commonPool());
+    }
+
+    CaffeineCache(int capacity, Executor executor) {
         assert capacity > 0;
         this.caffeineCache = Caffeine.newBuilder()
+                .executor(executor)
                 .initialCapacity(capacity)
                 .maximumSize(capacity)
                 .recordStats()
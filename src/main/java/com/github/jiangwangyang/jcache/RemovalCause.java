@@ -0,0 +1,8 @@
+package com.github.jiangwangyang.jcache;
+
+public enum RemovalCause {
+    EXPLICIT,
+    REPLACED,
+    EXPIRED,
+    EVICTED
+}
@@ -0,0 +1,136 @@
+package com.github.jiangwangyang.jcache;
+
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscArrayQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+class RemovalEventDispatcher<K, V> {
+
+    static final int CHUNK_SIZE = 1024;
+    static final int BATCH_SIZE = 1024;
+    private static final System.Logger LOGGER = System.getLogger(RemovalEventDispatcher.class.getName());
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private final RemovalListener<K, V> removalListener;
+    private final Executor executor;
+    private final MessagePassingQueue<RemovalEvent<K, V>> queue;
+    private final long maxBlockNanos;
+    private final ArrayDeque<RemovalEvent<K, V>> reentrantEvents = new ArrayDeque<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder listenerFailureCount = new LongAdder();
+    private volatile Thread drainThread;
+
+    RemovalEventDispatcher(RemovalListener<K, V> removalListener, Executor executor,
+                           int maxPendingEvents, long maxBlockMillis) {
+        if (removalListener == null) {
+            throw new IllegalArgumentException("removalListener must not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        if (maxPendingEvents < 0) {
+            throw new IllegalArgumentException("maxPendingEvents must not be negative");
+        }
+        if (maxBlockMillis < 0) {
+            throw new IllegalArgumentException("maxBlockMillis must not be negative");
+        }
+        this.removalListener = removalListener;
+        this.executor = executor;
+        this.queue = maxPendingEvents == 0
+                ? new MpscUnboundedArrayQueue<>(CHUNK_SIZE)
+                : new MpscArrayQueue<>(maxPendingEvents);
+        this.maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+    }
+
+    void dispatch(K key, V value, RemovalCause cause) {
+        RemovalEvent<K, V> event = new RemovalEvent<>(key, value, cause);
+        if (drainThread == Thread.currentThread()) {
+            if (!reentrantEvents.isEmpty() || !queue.relaxedOffer(event)) {
+                reentrantEvents.add(event);
+            }
+            return;
+        }
+        if (queue.relaxedOffer(event)) {
+            scheduleDrain();
+            return;
+        }
+        long deadline = System.nanoTime() + maxBlockNanos;
+        do {
+            if (!scheduleDrain() || System.nanoTime() - deadline >= 0) {
+                droppedCount.increment();
+                return;
+            }
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+        } while (!queue.relaxedOffer(event));
+        scheduleDrain();
+    }
+
+    long droppedCount() {
+        return droppedCount.sum();
+    }
+
+    long listenerFailureCount() {
+        return listenerFailureCount.sum();
+    }
+
+    private boolean scheduleDrain() {
+        if (scheduled.get() || !scheduled.compareAndSet(false, true)) {
+            return true;
+        }
+        try {
+            executor.execute(this::drain);
+            return true;
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            return false;
+        }
+    }
+
+    private void drain() {
+        drainThread = Thread.currentThread();
+        try {
+            int delivered = 0;
+            for (; delivered < BATCH_SIZE && !reentrantEvents.isEmpty(); delivered++) {
+                deliver(reentrantEvents.poll());
+            }
+            if (delivered < BATCH_SIZE) {
+                queue.drain(this::deliver, BATCH_SIZE - delivered);
+            }
+        } finally {
+            drainThread = null;
+            scheduled.set(false);
+        }
+        if (!queue.isEmpty() || !reentrantEvents.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void deliver(RemovalEvent<K, V> event) {
+        try {
+            removalListener.onRemoval(event.key, event.value, event.cause);
+        } catch (RuntimeException e) {
+            listenerFailureCount.increment();
+            LOGGER.log(System.Logger.Level.WARNING, "removal listener threw an exception", e);
+        }
+    }
+
+    static class RemovalEvent<K, V> {
+        final K key;
+        final V value;
+        final RemovalCause cause;
+
+        RemovalEvent(K key, V value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+}
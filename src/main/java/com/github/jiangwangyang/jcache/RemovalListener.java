@@ -0,0 +1,11 @@
+package com.github.jiangwangyang.jcache;
+
+/**
+ * Receives entries removed from a {@link SegmentedLRUCache}. Events are delivered asynchronously
+ * in batches on the configured executor. Delivery order is not guaranteed, not even for a single key.
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    void onRemoval(K key, V value, RemovalCause cause);
+}
@@ -1,21 +1,40 @@
 package com.github.jiangwangyang.jcache;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 public class SegmentedLRUCache<K, V> implements JCache<K, V> {
 
     static final int HASH_BITS = 0x7fffffff;
+    static final long RELOAD_INITIAL_BACKOFF_MILLIS = 50;
+    static final long RELOAD_MAX_BACKOFF_MILLIS = 5000;
+    static final long DEFAULT_MAX_BLOCK_MILLIS = 100;
     private final Map<K, Node<K, V>> map;
     private final SegmentedLruQueue<K, V>[] segmentedLruQueues;
     private final LongAdder requestCount = new LongAdder();
     private final LongAdder hitCount = new LongAdder();
     private final long startTime;
+    private final long staleGraceMillis;
+    private final long failureCacheMillis;
+    private final Executor reloadExecutor;
+    private final RemovalEventDispatcher<K, V> removalEventDispatcher;
 
     public SegmentedLRUCache(int capacity, int segmentNum, double hotRatio) {
+        this(capacity, segmentNum, hotRatio, 0, 0, ForkJoinPool.commonPool(), null);
+    }
+
+    private SegmentedLRUCache(int capacity, int segmentNum, double hotRatio,
+                              long staleGraceMillis, long failureCacheMillis, Executor reloadExecutor,
+                              RemovalEventDispatcher<K, V> removalEventDispatcher) {
         if (capacity < 0) {
             throw new IllegalArgumentException("capacity must be greater than 0");
         }
@@ -25,6 +44,19 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
         if (hotRatio < 0 || hotRatio > 1) {
             throw new IllegalArgumentException("hotRatio must be between 0 and 1");
         }
+        if (staleGraceMillis < 0) {
+            throw new IllegalArgumentException("staleGraceMillis must not be negative");
+        }
+        if (failureCacheMillis < 0) {
+            throw new IllegalArgumentException("failureCacheMillis must not be negative");
+        }
+        if (reloadExecutor == null) {
+            throw new IllegalArgumentException("reloadExecutor must not be null");
+        }
+        this.staleGraceMillis = staleGraceMillis;
+        this.failureCacheMillis = failureCacheMillis;
+        this.reloadExecutor = reloadExecutor;
+        this.removalEventDispatcher = removalEventDispatcher;
         int segmentCapacity = capacity / segmentNum;
         int segmentHotCapacity = (int) (segmentCapacity * hotRatio);
         int segmentColdCapacity = segmentCapacity - segmentHotCapacity;
@@ -36,26 +68,135 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
         startTime = System.currentTimeMillis();
     }
 
+    public static <K, V> Builder<K, V> newBuilder(int capacity, int segmentNum, double hotRatio) {
+        return new Builder<>(capacity, segmentNum, hotRatio);
+    }
+
+    public long removalEventDroppedCount() {
+        return removalEventDispatcher == null ? 0 : removalEventDispatcher.droppedCount();
+    }
+
+    public long removalListenerFailureCount() {
+        return removalEventDispatcher == null ? 0 : removalEventDispatcher.listenerFailureCount();
+    }
+
     private SegmentedLruQueue<K, V> getSegmentedLruQueue(K key) {
         int h = key.hashCode();
         return segmentedLruQueues[((h ^ (h >>> 16)) & HASH_BITS) % segmentedLruQueues.length];
     }
 
-    private Node<K, V> getNodeIfPresent(K key) {
+    private void removeNode(Node<K, V> node, RemovalCause cause) {
+        if (map.remove(node.key, node)) {
+            notifyRemoval(node, cause);
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        removeNode(node, node.expireTime + staleGraceMillis <= System.currentTimeMillis()
+                ? RemovalCause.EXPIRED : RemovalCause.EVICTED);
+    }
+
+    private void notifyRemoval(Node<K, V> node, RemovalCause cause) {
+        if (removalEventDispatcher != null && node.failure == null) {
+            removalEventDispatcher.dispatch(node.key, node.value, cause);
+        }
+    }
+
+    private Node<K, V> getNodeIfPresent(K key, long now) {
         requestCount.increment();
         Node<K, V> node = map.get(key);
         if (node == null) {
             return null;
         }
-        if (node.expireTime <= System.currentTimeMillis()) {
-            map.remove(key, node);
+        if (node.expireTime <= now) {
+            if (node.failure == null && node.expireTime + staleGraceMillis > now) {
+                return node;
+            }
+            removeNode(node, RemovalCause.EXPIRED);
             return null;
         }
-        getSegmentedLruQueue(key).updateNode(node);
-        hitCount.increment();
+        if (node.failure == null) {
+            getSegmentedLruQueue(key).updateNode(node);
+            hitCount.increment();
+        }
         return node;
     }
 
+    private Node<K, V> loadNode(K key, Function<K, V> loadValueFunction, long minExpireMillis, long maxExpireMillis) {
+        V value;
+        try {
+            value = loadValueFunction.apply(key);
+        } catch (RuntimeException e) {
+            if (failureCacheMillis == 0) {
+                throw e;
+            }
+            return new Node<>(key, null, System.currentTimeMillis() + failureCacheMillis, e);
+        }
+        return new Node<>(key, value, System.currentTimeMillis()
+                + ThreadLocalRandom.current().nextLong(minExpireMillis, maxExpireMillis + 1));
+    }
+
+    private V valueOf(Node<K, V> node) {
+        if (node.failure != null) {
+            throw new CacheLoaderException("failed to load key " + node.key, node.failure);
+        }
+        return node.value;
+    }
+
+    private void reloadAsync(Node<K, V> staleNode, Function<K, V> loadValueFunction,
+                             long minExpireMillis, long maxExpireMillis) {
+        if (!Node.RELOADING.compareAndSet(staleNode, 0, 1)) {
+            return;
+        }
+        try {
+            reloadExecutor.execute(() -> reload(staleNode, loadValueFunction,
+                    minExpireMillis, maxExpireMillis, RELOAD_INITIAL_BACKOFF_MILLIS));
+        } catch (RejectedExecutionException e) {
+            staleNode.reloading = 0;
+        }
+    }
+
+    private void reload(Node<K, V> staleNode, Function<K, V> loadValueFunction,
+                        long minExpireMillis, long maxExpireMillis, long backoffMillis) {
+        K key = staleNode.key;
+        if (map.get(key) != staleNode) {
+            return;
+        }
+        V value;
+        try {
+            value = loadValueFunction.apply(key);
+        } catch (RuntimeException e) {
+            if (map.get(key) == staleNode
+                    && System.currentTimeMillis() + backoffMillis < staleNode.expireTime + staleGraceMillis) {
+                long nextBackoffMillis = Math.min(backoffMillis << 1, RELOAD_MAX_BACKOFF_MILLIS);
+                try {
+                    CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS, reloadExecutor)
+                            .execute(() -> reload(staleNode, loadValueFunction,
+                                    minExpireMillis, maxExpireMillis, nextBackoffMillis));
+                } catch (RejectedExecutionException ignored) {
+                }
+            }
+            return;
+        }
+        SegmentedLruQueue<K, V> segmentedLruQueue = getSegmentedLruQueue(key);
+        Node<K, V> newNode = new Node<>(key, value, System.currentTimeMillis()
+                + ThreadLocalRandom.current().nextLong(minExpireMillis, maxExpireMillis + 1));
+        Node<K, V>[] removedNodeWrapper = new Node[1];
+        map.computeIfPresent(key, (_k, node) -> {
+            if (node != staleNode) {
+                return node;
+            }
+            removedNodeWrapper[0] = segmentedLruQueue.addNodeAndRemoveTail(newNode);
+            return newNode;
+        });
+        if (removedNodeWrapper[0] != null) {
+            notifyRemoval(staleNode, RemovalCause.REPLACED);
+            if (removedNodeWrapper[0].key != null) {
+                evictNode(removedNodeWrapper[0]);
+            }
+        }
+    }
+
     @Override
     public V get(K key, Function<K, V> loadValueFunction, long minExpireMillis, long maxExpireMillis) {
         assert key != null;
@@ -63,34 +204,40 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
         assert minExpireMillis >= 0;
         assert maxExpireMillis >= 0;
         assert minExpireMillis <= maxExpireMillis;
-        Node<K, V> node = getNodeIfPresent(key);
+        long now = System.currentTimeMillis();
+        Node<K, V> node = getNodeIfPresent(key, now);
         if (node != null) {
-            return node.value;
+            if (node.expireTime <= now) {
+                hitCount.increment();
+                reloadAsync(node, loadValueFunction, minExpireMillis, maxExpireMillis);
+                return node.value;
+            }
+            return valueOf(node);
         }
         SegmentedLruQueue<K, V> segmentedLruQueue = getSegmentedLruQueue(key);
         Node<K, V>[] removedNodeWrapper = new Node[1];
         boolean[] executedWrapper = new boolean[1];
         node = map.computeIfAbsent(key, (_k) -> {
             executedWrapper[0] = true;
-            Node<K, V> newNode = new Node<>(key, loadValueFunction.apply(key), System.currentTimeMillis()
-                    + ThreadLocalRandom.current().nextLong(minExpireMillis, maxExpireMillis + 1));
+            Node<K, V> newNode = loadNode(key, loadValueFunction, minExpireMillis, maxExpireMillis);
             removedNodeWrapper[0] = segmentedLruQueue.addNodeAndRemoveTail(newNode);
             return newNode;
         });
         if (executedWrapper[0] && removedNodeWrapper[0].key != null) {
-            map.remove(removedNodeWrapper[0].key, removedNodeWrapper[0]);
+            evictNode(removedNodeWrapper[0]);
         }
-        if (!executedWrapper[0]) {
+        if (!executedWrapper[0] && node.failure == null) {
             segmentedLruQueue.updateNode(node);
         }
-        return node.value;
+        return valueOf(node);
     }
 
     @Override
     public V getIfPresent(K key) {
         assert key != null;
-        Node<K, V> node = getNodeIfPresent(key);
-        return node == null ? null : node.value;
+        long now = System.currentTimeMillis();
+        Node<K, V> node = getNodeIfPresent(key, now);
+        return node == null || node.expireTime <= now || node.failure != null ? null : node.value;
     }
 
     @Override
@@ -104,9 +251,12 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
                 + ThreadLocalRandom.current().nextLong(minExpireMillis, maxExpireMillis + 1));
         Node<K, V> removedNode = segmentedLruQueue.addNodeAndRemoveTail(newNode);
         if (removedNode.key != null) {
-            map.remove(removedNode.key, removedNode);
+            evictNode(removedNode);
+        }
+        Node<K, V> replacedNode = map.put(key, newNode);
+        if (replacedNode != null) {
+            notifyRemoval(replacedNode, RemovalCause.REPLACED);
         }
-        map.put(key, newNode);
     }
 
     @Override
@@ -114,7 +264,7 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
         assert key != null;
         Node<K, V> node = map.get(key);
         if (node != null) {
-            map.remove(key, node);
+            removeNode(node, RemovalCause.EXPLICIT);
         }
     }
 
@@ -123,6 +273,60 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
         return new CacheStats(map.size(), startTime, System.currentTimeMillis(), requestCount.sum(), hitCount.sum());
     }
 
+    public static class Builder<K, V> {
+        private final int capacity;
+        private final int segmentNum;
+        private final double hotRatio;
+        private long staleGraceMillis;
+        private long failureCacheMillis;
+        private Executor reloadExecutor = ForkJoinPool.commonPool();
+        private RemovalListener<K, V> removalListener;
+        private Executor listenerExecutor = ForkJoinPool.commonPool();
+        private int maxPendingEvents;
+        private long maxBlockMillis = DEFAULT_MAX_BLOCK_MILLIS;
+        private boolean maxPendingEventsSet;
+
+        Builder(int capacity, int segmentNum, double hotRatio) {
+            this.capacity = capacity;
+            this.segmentNum = segmentNum;
+            this.hotRatio = hotRatio;
+        }
+
+        public Builder<K, V> staleWhileRevalidate(long staleGraceMillis, Executor reloadExecutor) {
+            this.staleGraceMillis = staleGraceMillis;
+            this.reloadExecutor = reloadExecutor;
+            return this;
+        }
+
+        public Builder<K, V> failureCacheMillis(long failureCacheMillis) {
+            this.failureCacheMillis = failureCacheMillis;
+            return this;
+        }
+
+        public Builder<K, V> removalListener(RemovalListener<K, V> removalListener, Executor listenerExecutor) {
+            this.removalListener = removalListener;
+            this.listenerExecutor = listenerExecutor;
+            return this;
+        }
+
+        public Builder<K, V> maxPendingRemovalEvents(int maxPendingEvents, long maxBlockMillis) {
+            this.maxPendingEvents = maxPendingEvents;
+            this.maxBlockMillis = maxBlockMillis;
+            this.maxPendingEventsSet = true;
+            return this;
+        }
+
+        public SegmentedLRUCache<K, V> build() {
+            if (maxPendingEventsSet && removalListener == null) {
+                throw new IllegalArgumentException("maxPendingRemovalEvents requires a removalListener");
+            }
+            RemovalEventDispatcher<K, V> removalEventDispatcher = removalListener == null ? null
+                    : new RemovalEventDispatcher<>(removalListener, listenerExecutor, maxPendingEvents, maxBlockMillis);
+            return new SegmentedLRUCache<>(capacity, segmentNum, hotRatio,
+                    staleGraceMillis, failureCacheMillis, reloadExecutor, removalEventDispatcher);
+        }
+    }
+
     enum NodeStatus {
         INITIAL,
         HOT,
@@ -232,17 +436,26 @@ public class SegmentedLRUCache<K, V> implements JCache<K, V> {
     }
 
     static class Node<K, V> {
+        static final AtomicIntegerFieldUpdater<Node> RELOADING =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "reloading");
         final long expireTime;
         final K key;
         final V value;
+        final RuntimeException failure;
         NodeStatus status = NodeStatus.INITIAL;
         Node<K, V> prev;
         Node<K, V> next;
+        volatile int reloading;
 
         Node(K key, V value, long expireTime) {
+            this(key, value, expireTime, null);
+        }
+
+        Node(K key, V value, long expireTime, RuntimeException failure) {
             this.key = key;
             this.value = value;
             this.expireTime = expireTime;
+            this.failure = failure;
         }
     }
 
@@ -0,0 +1,83 @@
+package com.github.jiangwangyang.jcache;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+public final class TraceSimulator {
+
+    static final long EXPIRE_MILLIS = TimeUnit.DAYS.toMillis(365);
+    static final int MAX_EVENTS = Integer.MAX_VALUE - 8;
+    private static final Function<Integer, Integer> LOAD_VALUE_FUNCTION = key -> key;
+    private final long[] events;
+
+    public TraceSimulator(long[] events) {
+        if (events == null) {
+            throw new IllegalArgumentException("events must not be null");
+        }
+        this.events = events;
+    }
+
+    public static TraceSimulator load(Path path) throws IOException {
+        long fileSize = Files.size(path);
+        if (fileSize % AccessTraceRecorder.RECORD_BYTES != 0) {
+            throw new IOException("trace file is truncated: " + path);
+        }
+        long recordCount = fileSize / AccessTraceRecorder.RECORD_BYTES;
+        if (recordCount > MAX_EVENTS) {
+            throw new IOException("trace file has " + recordCount + " records, more than " + MAX_EVENTS + ": " + path);
+        }
+        long[] events = new long[(int) recordCount];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            for (int i = 0; i < events.length; i++) {
+                int operation = in.readUnsignedByte();
+                if (operation >= AccessTraceRecorder.Operation.VALUES.length) {
+                    throw new IOException("unknown operation " + operation + " at record " + i);
+                }
+                events[i] = AccessTraceRecorder.encode(AccessTraceRecorder.Operation.VALUES[operation], in.readInt());
+            }
+        }
+        return new TraceSimulator(events);
+    }
+
+    public static JCache<Integer, Integer> newCaffeineCache(int capacity) {
+        return new CaffeineCache<>(capacity, Runnable::run);
+    }
+
+    public int size() {
+        return events.length;
+    }
+
+    public CacheStats replay(JCache<Integer, Integer> cache) {
+        assert cache != null;
+        for (long event : events) {
+            Integer key = AccessTraceRecorder.keyHash(event);
+            switch (AccessTraceRecorder.operation(event)) {
+                case GET -> cache.get(key, LOAD_VALUE_FUNCTION, EXPIRE_MILLIS, EXPIRE_MILLIS);
+                case GET_IF_PRESENT -> cache.getIfPresent(key);
+                case PUT -> cache.put(key, key, EXPIRE_MILLIS, EXPIRE_MILLIS);
+                case REMOVE -> cache.remove(key);
+            }
+        }
+        return cache.stats();
+    }
+
+    public Map<Integer, CacheStats> hitRateCurve(IntFunction<JCache<Integer, Integer>> cacheFactory, int... capacities) {
+        if (cacheFactory == null) {
+            throw new IllegalArgumentException("cacheFactory must not be null");
+        }
+        Map<Integer, CacheStats> curve = new LinkedHashMap<>(capacities.length << 1);
+        for (int capacity : capacities) {
+            curve.put(capacity, replay(cacheFactory.apply(capacity)));
+        }
+        return curve;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.github.jiangwangyang.jcache;
+
+import java.util.function.Function;
+
+public class TracingCache<K, V> implements JCache<K, V> {
+
+    private final JCache<K, V> cache;
+    private final AccessTraceRecorder recorder;
+
+    public TracingCache(JCache<K, V> cache, AccessTraceRecorder recorder) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null");
+        }
+        if (recorder == null) {
+            throw new IllegalArgumentException("recorder must not be null");
+        }
+        this.cache = cache;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public V get(K key, Function<K, V> loadValueFunction, long minExpireMillis, long maxExpireMillis) {
+        assert key != null;
+        recorder.record(AccessTraceRecorder.Operation.GET, key);
+        return cache.get(key, loadValueFunction, minExpireMillis, maxExpireMillis);
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        assert key != null;
+        recorder.record(AccessTraceRecorder.Operation.GET_IF_PRESENT, key);
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void put(K key, V value, long minExpireMillis, long maxExpireMillis) {
+        assert key != null;
+        recorder.record(AccessTraceRecorder.Operation.PUT, key);
+        cache.put(key, value, minExpireMillis, maxExpireMillis);
+    }
+
+    @Override
+    public void remove(K key) {
+        assert key != null;
+        recorder.record(AccessTraceRecorder.Operation.REMOVE, key);
+        cache.remove(key);
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -2,13 +2,19 @@ package com.github.jiangwangyang.jcache;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -102,4 +108,233 @@ public class SegmentedLRUCacheTest {
         }
     }
 
+    @Test
+    void testStaleWhileRevalidate() throws InterruptedException {
+        ExecutorService reloadExecutor = Executors.newSingleThreadExecutor();
+        JCache<Object, Object> cache = SegmentedLRUCache.newBuilder(100, 10, 0.2)
+                .staleWhileRevalidate(10000, reloadExecutor)
+                .build();
+        assertEquals(0, cache.get(1, key -> 0, 100, 100));
+        Thread.sleep(150);
+        assertNull(cache.getIfPresent(1));
+        AtomicInteger loadCount = new AtomicInteger(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, cache.get(1, key -> {
+                if (loadCount.getAndIncrement() < 2) {
+                    throw new RuntimeException("backend down");
+                }
+                return 1;
+            }, 1000, 1000));
+        }
+        for (int i = 0; i < 500 && cache.getIfPresent(1) == null; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, loadCount.get());
+        assertEquals(1, cache.getIfPresent(1));
+        reloadExecutor.shutdown();
+    }
+
+    @Test
+    void testFailureCache() throws InterruptedException {
+        JCache<Object, Object> cache = SegmentedLRUCache.newBuilder(100, 10, 0.2)
+                .failureCacheMillis(100)
+                .build();
+        AtomicInteger failCount = new AtomicInteger(0);
+        Function<Object, Object> failingLoader = key -> {
+            failCount.getAndIncrement();
+            throw new IllegalStateException("backend down");
+        };
+        CacheLoaderException loading = assertThrows(CacheLoaderException.class,
+                () -> cache.get(1, failingLoader, 60000, 60000));
+        CacheLoaderException first = assertThrows(CacheLoaderException.class,
+                () -> cache.get(1, failingLoader, 60000, 60000));
+        CacheLoaderException second = assertThrows(CacheLoaderException.class,
+                () -> cache.get(1, failingLoader, 60000, 60000));
+        assertNotSame(first, second);
+        assertInstanceOf(IllegalStateException.class, first.getCause());
+        assertSame(loading.getCause(), first.getCause());
+        assertSame(first.getCause(), second.getCause());
+        assertEquals(1, failCount.get());
+        assertNull(cache.getIfPresent(1));
+        Thread.sleep(150);
+        assertEquals(1, cache.get(1, key -> key, 60000, 60000));
+    }
+
+    @Test
+    void testFailureNotPromoted() {
+        JCache<Object, Object> cache = SegmentedLRUCache.newBuilder(10, 1, 0.2)
+                .failureCacheMillis(60000)
+                .build();
+        cache.get(1, key -> key, 60000, 60000);
+        cache.get(2, key -> key, 60000, 60000);
+        cache.getIfPresent(1);
+        cache.getIfPresent(2);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(RuntimeException.class, () -> cache.get(3, key -> {
+                throw new IllegalStateException("backend down");
+            }, 60000, 60000));
+        }
+        for (int i = 100; i < 110; i++) {
+            cache.get(i, key -> key, 60000, 60000);
+        }
+        assertEquals(1, cache.getIfPresent(1));
+        assertEquals(2, cache.getIfPresent(2));
+    }
+
+    @Test
+    void testRemovalListener() throws InterruptedException {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        Map<Object, RemovalCause> causes = new ConcurrentHashMap<>();
+        JCache<Object, Object> cache = SegmentedLRUCache.newBuilder(10, 1, 0.2)
+                .removalListener((key, value, cause) -> causes.put(key, cause), listenerExecutor)
+                .build();
+        cache.put(1, 1, 60000, 60000);
+        cache.remove(1);
+        cache.put(2, 2, 60000, 60000);
+        cache.put(2, 2, 60000, 60000);
+        cache.get(3, key -> key, 100, 100);
+        Thread.sleep(150);
+        assertNull(cache.getIfPresent(3));
+        for (int i = 100; i < 110; i++) {
+            cache.get(i, key -> key, 60000, 60000);
+        }
+        listenerExecutor.shutdown();
+        assertTrue(listenerExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(RemovalCause.EXPLICIT, causes.get(1));
+        assertEquals(RemovalCause.EVICTED, causes.get(2));
+        assertEquals(RemovalCause.EXPIRED, causes.get(3));
+        assertEquals(RemovalCause.EVICTED, causes.get(100));
+        assertEquals(5, causes.size());
+    }
+
+    @Test
+    void testRemovalListenerBackpressure() throws InterruptedException {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger removalCount = new AtomicInteger(0);
+        SegmentedLRUCache<Object, Object> cache = SegmentedLRUCache.<Object, Object>newBuilder(10, 1, 0.2)
+                .removalListener((key, value, cause) -> {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    removalCount.getAndIncrement();
+                }, listenerExecutor)
+                .maxPendingRemovalEvents(4, 60000)
+                .build();
+        AtomicInteger putCount = new AtomicInteger(0);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                cache.put(i, i, 60000, 60000);
+                putCount.getAndIncrement();
+            }
+        });
+        producer.start();
+        Thread.sleep(300);
+        assertTrue(producer.isAlive());
+        assertTrue(putCount.get() <= 8 + 1 + 4);
+        latch.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        listenerExecutor.shutdown();
+        assertTrue(listenerExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(92, removalCount.get());
+        assertEquals(0, cache.removalEventDroppedCount());
+    }
+
+    @Test
+    void testRemovalListenerBackpressureTimeout() throws InterruptedException {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        SegmentedLRUCache<Object, Object> cache = SegmentedLRUCache.<Object, Object>newBuilder(10, 1, 0.2)
+                .removalListener((key, value, cause) -> {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, listenerExecutor)
+                .maxPendingRemovalEvents(4, 10)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i, 60000, 60000);
+        }
+        assertTrue(cache.removalEventDroppedCount() >= 92 - 1 - 4);
+        latch.countDown();
+        listenerExecutor.shutdown();
+        assertTrue(listenerExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRemovalListenerWriteBack() throws InterruptedException {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        AtomicInteger removalCount = new AtomicInteger(0);
+        JCache<Integer, Integer>[] cacheWrapper = new JCache[1];
+        SegmentedLRUCache<Integer, Integer> cache = SegmentedLRUCache.<Integer, Integer>newBuilder(10, 1, 0.2)
+                .removalListener((key, value, cause) -> {
+                    removalCount.getAndIncrement();
+                    if (cause == RemovalCause.EVICTED && key < 1000000) {
+                        cacheWrapper[0].put(key + 1000000, value, 60000, 60000);
+                    }
+                }, listenerExecutor)
+                .maxPendingRemovalEvents(2, 60000)
+                .build();
+        cacheWrapper[0] = cache;
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i, i, 60000, 60000);
+            }
+        });
+        Thread.sleep(500);
+        listenerExecutor.shutdown();
+        assertTrue(listenerExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(removalCount.get() >= 992);
+        assertEquals(0, cache.removalEventDroppedCount());
+    }
+
+    @Test
+    void testRemovalListenerFailure() throws InterruptedException {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        SegmentedLRUCache<Object, Object> cache = SegmentedLRUCache.<Object, Object>newBuilder(10, 1, 0.2)
+                .removalListener((key, value, cause) -> {
+                    throw new IllegalStateException("listener broken");
+                }, listenerExecutor)
+                .build();
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i, 60000, 60000);
+            cache.remove(i);
+        }
+        listenerExecutor.shutdown();
+        assertTrue(listenerExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(10, cache.removalListenerFailureCount());
+    }
+
+    @Test
+    void testRemovalListenerExpiredOnEviction() throws InterruptedException {
+        ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+        Map<Object, RemovalCause> causes = new ConcurrentHashMap<>();
+        JCache<Object, Object> cache = SegmentedLRUCache.newBuilder(10, 1, 0.2)
+                .removalListener((key, value, cause) -> causes.put(key, cause), listenerExecutor)
+                .build();
+        cache.put(1, 1, 50, 50);
+        cache.put(2, 2, 60000, 60000);
+        Thread.sleep(100);
+        for (int i = 100; i < 108; i++) {
+            cache.put(i, i, 60000, 60000);
+        }
+        listenerExecutor.shutdown();
+        assertTrue(listenerExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(RemovalCause.EXPIRED, causes.get(1));
+        assertEquals(RemovalCause.EVICTED, causes.get(2));
+        assertEquals(2, causes.size());
+    }
+
+    @Test
+    void testMaxPendingRemovalEventsRequiresListener() {
+        assertThrows(IllegalArgumentException.class, () -> SegmentedLRUCache.newBuilder(10, 1, 0.2)
+                .maxPendingRemovalEvents(4, 100)
+                .build());
+    }
+
 }
@@ -0,0 +1,138 @@
+package com.github.jiangwangyang.jcache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraceSimulatorTest {
+
+    @Test
+    void testRecordAndLoad(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("trace.bin");
+        try (AccessTraceRecorder recorder = new AccessTraceRecorder(path, 1 << 16)) {
+            JCache<Integer, Integer> cache = new TracingCache<>(new SegmentedLRUCache<>(100, 10, 0.2), recorder);
+            cache.get(1, key -> key, 60000, 60000);
+            cache.getIfPresent(-2);
+            cache.put(3, 3, 60000, 60000);
+            cache.remove(4);
+        }
+        TraceSimulator simulator = TraceSimulator.load(path);
+        assertEquals(4, simulator.size());
+        CacheStats stats = simulator.replay(new SegmentedLRUCache<>(100, 10, 0.2));
+        assertEquals(2, stats.requestCount());
+        assertEquals(0, stats.hitCount());
+        assertEquals(2, stats.size());
+    }
+
+    @Test
+    void testRecorderDropsWhenFullAndAfterClose(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("trace.bin");
+        AccessTraceRecorder recorder = new AccessTraceRecorder(path, 4);
+        for (int i = 0; i < 100000; i++) {
+            recorder.record(AccessTraceRecorder.Operation.GET, i);
+        }
+        recorder.close();
+        recorder.record(AccessTraceRecorder.Operation.GET, 0);
+        recorder.close();
+        assertEquals(100001, recorder.recordedCount() + recorder.droppedCount());
+        assertTrue(recorder.droppedCount() >= 1);
+        assertEquals(recorder.recordedCount(), TraceSimulator.load(path).size());
+    }
+
+    @Test
+    void testRecorderMultiThreads(@TempDir Path dir) throws IOException, InterruptedException {
+        Path path = dir.resolve("trace.bin");
+        AccessTraceRecorder recorder = new AccessTraceRecorder(path, 1 << 10);
+        ExecutorService threadPool = Executors.newFixedThreadPool(10);
+        List<Callable<Void>> taskList = new ArrayList<>(10);
+        for (int i = 0; i < 10; i++) {
+            taskList.add(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    recorder.record(AccessTraceRecorder.Operation.PUT, j);
+                }
+                return null;
+            });
+        }
+        threadPool.invokeAll(taskList);
+        threadPool.shutdown();
+        recorder.close();
+        assertEquals(1000000, recorder.recordedCount() + recorder.droppedCount());
+        TraceSimulator simulator = TraceSimulator.load(path);
+        assertEquals(recorder.recordedCount(), simulator.size());
+    }
+
+    @Test
+    void testHitRateCurve() {
+        long[] events = new long[100000];
+        for (int i = 0; i < events.length; i++) {
+            int key = ThreadLocalRandom.current().nextInt(100) < 75 ?
+                    ThreadLocalRandom.current().nextInt(100) : ThreadLocalRandom.current().nextInt(10000);
+            events[i] = AccessTraceRecorder.encode(AccessTraceRecorder.Operation.GET, key);
+        }
+        TraceSimulator simulator = new TraceSimulator(events);
+        Map<Integer, CacheStats> curve = simulator.hitRateCurve(
+                capacity -> new SegmentedLRUCache<>(capacity, 10, 0.25), 100, 1000, 10000);
+        assertEquals(3, curve.size());
+        assertTrue(curve.get(100).hitRate() < curve.get(1000).hitRate());
+        assertTrue(curve.get(1000).hitRate() < curve.get(10000).hitRate());
+        for (CacheStats stats : curve.values()) {
+            assertEquals(events.length, stats.requestCount());
+        }
+    }
+
+    @Test
+    void testCaffeineHitRateCurve() {
+        long[] events = new long[100000];
+        for (int i = 0; i < events.length; i++) {
+            int key = ThreadLocalRandom.current().nextInt(100) < 75 ?
+                    ThreadLocalRandom.current().nextInt(100) : ThreadLocalRandom.current().nextInt(10000);
+            events[i] = AccessTraceRecorder.encode(AccessTraceRecorder.Operation.GET, key);
+        }
+        TraceSimulator simulator = new TraceSimulator(events);
+        Map<Integer, CacheStats> curve = simulator.hitRateCurve(TraceSimulator::newCaffeineCache, 100, 1000, 10000);
+        Map<Integer, CacheStats> repeatedCurve = simulator.hitRateCurve(TraceSimulator::newCaffeineCache, 100, 1000, 10000);
+        assertEquals(3, curve.size());
+        assertTrue(curve.get(100).hitRate() < curve.get(1000).hitRate());
+        assertTrue(curve.get(1000).hitRate() < curve.get(10000).hitRate());
+        for (int capacity : curve.keySet()) {
+            assertTrue(curve.get(capacity).size() <= capacity);
+            assertEquals(events.length, curve.get(capacity).requestCount());
+            assertEquals(curve.get(capacity).hitRate(), repeatedCurve.get(capacity).hitRate(), 0.02);
+        }
+    }
+
+    @Test
+    void testConcurrentClose(@TempDir Path dir) throws IOException, InterruptedException {
+        Path path = dir.resolve("trace.bin");
+        AccessTraceRecorder recorder = new AccessTraceRecorder(path, 1 << 16);
+        for (int i = 0; i < 50000; i++) {
+            recorder.record(AccessTraceRecorder.Operation.GET, i);
+        }
+        ExecutorService threadPool = Executors.newFixedThreadPool(4);
+        List<Callable<Void>> taskList = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            taskList.add(() -> {
+                recorder.close();
+                assertEquals(recorder.recordedCount(), TraceSimulator.load(path).size());
+                return null;
+            });
+        }
+        for (var future : threadPool.invokeAll(taskList)) {
+            assertDoesNotThrow(() -> future.get());
+        }
+        threadPool.shutdown();
+        assertEquals(50000, recorder.recordedCount() + recorder.droppedCount());
+    }
+
+}